@@ -5,14 +5,25 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -20,30 +31,378 @@ import java.util.stream.Collectors;
 import static java.util.Optional.ofNullable;
 
 public final class PropertyMapToJsonConverter {
+    /**
+     * Orders property keys element by element: array indices before object keys, array indices numerically and
+     * object keys lexicographically.
+     */
+    static final Comparator<String> CANONICAL_KEY_ORDER = PropertyMapToJsonConverter::compareKeys;
+
     private final Map<String, String> properties;
     private final ObjectNode json;
+    private final Map<String, String> provenance;
+    private volatile String contentHash;
 
     public PropertyMapToJsonConverter(Map<String, String> properties, ObjectNode json) {
         this.properties = properties;
         this.json = json;
+        this.provenance = Collections.emptyMap();
     }
 
     public PropertyMapToJsonConverter(Map<String, String> propertyMap) {
-        this(propertyMap, JsonNodeFactory.instance.objectNode());
+        this(builder().properties(propertyMap));
+    }
+
+    private PropertyMapToJsonConverter(Builder builder) {
+        this.json = JsonNodeFactory.instance.objectNode();
+        this.provenance = builder.provenance ? new LinkedHashMap<>() : Collections.emptyMap();
+        JsonTreeBuilder treeBuilder = new JsonTreeBuilder(json, builder.limits());
+
+        if (builder.sources.size() == 1) {
+            PropertySource source = builder.sources.get(0);
+            this.properties = source.properties;
+            treeBuilder.checkPropertyCount(properties.size());
+            // without sorting, each property is added to the tree as soon as it is tokenized
+            List<Property> propertyList = builder.canonical ? new ArrayList<>(properties.size()) : null;
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                Property property = treeBuilder.tokenize(entry.getKey(), entry.getValue());
+                if (propertyList != null) {
+                    propertyList.add(property);
+                } else {
+                    treeBuilder.add(property);
+                }
+                if (builder.provenance) {
+                    provenance.put(entry.getKey(), source.name);
+                }
+            }
+            if (propertyList != null) {
+                buildCanonical(propertyList, treeBuilder);
+            }
+
+        } else {
+            // resolve precedence per path before building, so the tree is built once and a key overridden by a later
+            // source reuses the elements tokenized for the earlier one
+            Map<String, Property> propertyIndex = new LinkedHashMap<>();
+            // sorted keys of the index, so the descendants of a key are found by a range lookup
+            NavigableSet<String> sortedKeys = new TreeSet<>();
+            for (PropertySource source : builder.sources) {
+                // all keys of a source are in the index once it is merged
+                treeBuilder.checkPropertyCount(source.properties.size());
+
+                // tokenize first, so the limits are enforced before any work proportional to the key length
+                List<Property> sourceProperties = new ArrayList<>(source.properties.size());
+                for (Map.Entry<String, String> entry : source.properties.entrySet()) {
+                    Property previous = propertyIndex.get(entry.getKey());
+                    sourceProperties.add(previous == null ?
+                            treeBuilder.tokenize(entry.getKey(), entry.getValue()) :
+                            treeBuilder.withValue(previous, entry.getValue()));
+                }
+
+                // an earlier source can not hold both a value and a subtree at the same path as this source
+                for (Property property : sourceProperties) {
+                    removeOverriddenPaths(property, propertyIndex, sortedKeys, provenance);
+                }
+                for (Property property : sourceProperties) {
+                    propertyIndex.put(property.key, property);
+                    treeBuilder.checkPropertyCount(propertyIndex.size());
+                    sortedKeys.add(property.key);
+                    if (builder.provenance) {
+                        provenance.put(property.key, source.name);
+                    }
+                }
+            }
+            this.properties = new PropertyIndexView(propertyIndex);
+            if (builder.canonical) {
+                buildCanonical(new ArrayList<>(propertyIndex.values()), treeBuilder);
+            } else {
+                propertyIndex.values().forEach(treeBuilder::add);
+            }
+        }
+    }
+
+    /**
+     * Sorting up front makes every object receive its children in key order and every array its elements in index
+     * order, so the tree is canonical as built and no post-pass is needed.
+     */
+    private static void buildCanonical(List<Property> propertyList, JsonTreeBuilder treeBuilder) {
+        propertyList.sort(Comparator.comparing(Property::key, CANONICAL_KEY_ORDER));
+        propertyList.forEach(treeBuilder::add);
+    }
+
+    /**
+     * Removes properties that are ancestors or descendants of the given property.
+     */
+    private static void removeOverriddenPaths(Property property, Map<String, Property> propertyIndex, NavigableSet<String> sortedKeys, Map<String, String> provenance) {
+        String key = property.key;
+        // only the separators between tokenized elements, which the depth limit has already bounded
+        int ancestors = property.elements.size() - 1;
+        for (int i = key.indexOf('.'); ancestors-- > 0; i = key.indexOf('.', i + 1)) {
+            String ancestor = key.substring(0, i);
+            if (propertyIndex.remove(ancestor) != null) {
+                sortedKeys.remove(ancestor);
+                provenance.remove(ancestor);
+            }
+        }
+        // every key starting with "key." sorts between "key." and "key/", as '/' follows '.'
+        NavigableSet<String> descendants = sortedKeys.subSet(key + ".", true, key + "/", false);
+        if (!descendants.isEmpty()) {
+            for (String descendant : descendants) {
+                propertyIndex.remove(descendant);
+                provenance.remove(descendant);
+            }
+            descendants.clear();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static String getPathElementsByProperty(Property property, int limit) {
+        List<String> parentPathElementList = property.elements.stream().limit(limit).map(PropertyElement::key).collect(Collectors.toList());
+        return "ROOT" + (parentPathElementList.isEmpty() ? "" : "." + String.join(".", parentPathElementList));
+    }
+
+    public Map<String, String> properties() {
+        return properties;
+    }
+
+    public ObjectNode json() {
+        return json;
+    }
+
+    /**
+     * Returns the name of the property source each property was taken from. Empty unless provenance was
+     * enabled on the builder.
+     *
+     * @return map of property key to source name
+     */
+    public Map<String, String> provenance() {
+        return provenance;
+    }
+
+    /**
+     * Computes a SHA-256 digest over the json tree, streamed node by node without serializing it. Object fields are
+     * digested in tree order, so the digest is independent of the iteration order of the property map only when
+     * the tree was built in canonical mode. The digest is computed on first call, later changes to {@link #json()}
+     * are not reflected.
+     *
+     * @return lower-case hex encoded SHA-256 digest
+     */
+    public String contentHash() {
+        String hash = contentHash;
+        if (hash == null) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            updateDigest(digest, ByteBuffer.allocate(Integer.BYTES), json);
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            hash = hex.toString();
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    private static void updateDigest(MessageDigest digest, ByteBuffer buffer, JsonNode node) {
+        // each node is tagged with its type and containers with their size, so different trees never share a digest input
+        if (node.isObject()) {
+            updateHeader(digest, buffer, 'O', node.size());
+            for (Map.Entry<String, JsonNode> field : node.properties()) {
+                updateLengthPrefixed(digest, buffer, field.getKey());
+                updateDigest(digest, buffer, field.getValue());
+            }
+        } else if (node.isArray()) {
+            updateHeader(digest, buffer, 'A', node.size());
+            for (JsonNode element : node) {
+                updateDigest(digest, buffer, element);
+            }
+        } else {
+            digest.update((byte) 'T');
+            updateLengthPrefixed(digest, buffer, node.asText());
+        }
+    }
+
+    private static void updateHeader(MessageDigest digest, ByteBuffer buffer, char type, int size) {
+        digest.update((byte) type);
+        buffer.clear();
+        buffer.putInt(size);
+        digest.update(buffer.array());
+    }
+
+    private static void updateLengthPrefixed(MessageDigest digest, ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.clear();
+        buffer.putInt(bytes.length);
+        digest.update(buffer.array());
+        digest.update(bytes);
+    }
+
+    static int compareKeys(String key, String otherKey) {
+        int pos = 0;
+        int otherPos = 0;
+        while (true) {
+            int end = key.indexOf('.', pos);
+            if (end < 0) {
+                end = key.length();
+            }
+            int otherEnd = otherKey.indexOf('.', otherPos);
+            if (otherEnd < 0) {
+                otherEnd = otherKey.length();
+            }
+
+            int result = compareKeyElements(key, pos, end, otherKey, otherPos, otherEnd);
+            if (result != 0) {
+                return result;
+            }
+
+            boolean last = end == key.length();
+            boolean otherLast = otherEnd == otherKey.length();
+            if (last || otherLast) {
+                // a parent path sorts before its children
+                return Boolean.compare(!last, !otherLast);
+            }
+
+            pos = end + 1;
+            otherPos = otherEnd + 1;
+        }
+    }
+
+    private static int compareKeyElements(String key, int start, int end, String otherKey, int otherStart, int otherEnd) {
+        boolean digits = isDigits(key, start, end);
+        boolean otherDigits = isDigits(otherKey, otherStart, otherEnd);
+        if (digits != otherDigits) {
+            // mixing numeric and lexicographic comparison between the two kinds would not be transitive
+            return digits ? -1 : 1;
+        }
+        if (digits) {
+            int significantStart = skipLeadingZeros(key, start, end);
+            int otherSignificantStart = skipLeadingZeros(otherKey, otherStart, otherEnd);
+            int result = Integer.compare(end - significantStart, otherEnd - otherSignificantStart);
+            if (result == 0) {
+                result = compareRegions(key, significantStart, end, otherKey, otherSignificantStart, otherEnd);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return compareRegions(key, start, end, otherKey, otherStart, otherEnd);
+    }
+
+    private static boolean isDigits(String key, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipLeadingZeros(String key, int start, int end) {
+        while (start < end - 1 && key.charAt(start) == '0') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int compareRegions(String key, int start, int end, String otherKey, int otherStart, int otherEnd) {
+        int length = Math.min(end - start, otherEnd - otherStart);
+        for (int i = 0; i < length; i++) {
+            int result = Character.compare(key.charAt(start + i), otherKey.charAt(otherStart + i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(end - start, otherEnd - otherStart);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) return true;
+        if (obj == null || obj.getClass() != this.getClass()) return false;
+        PropertyMapToJsonConverter that = (PropertyMapToJsonConverter) obj;
+        return Objects.equals(this.properties, that.properties) &&
+                Objects.equals(this.json, that.json);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(properties, json);
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyMapToJsonConverter[" +
+                "properties=" + properties + ", " +
+                "json=" + json + ']';
+    }
 
-        List<Property> propertyList = propertyMap.entrySet().stream()
-                .map(e -> new PropertyTokenizer(e.getKey(), e.getValue()))
-                .map(t -> t.property)
-                .collect(Collectors.toList());
+    private static final class JsonTreeBuilder {
+        private final Map<String, JsonNode> parentPathMap = new LinkedHashMap<>();
+        private final Set<String> visitedPaths = new LinkedHashSet<>();
+        private final Limits limits;
+        private int propertyCount;
+        private int nodeCount;
+        private long valueBytes;
+
+        JsonTreeBuilder(ObjectNode json, Limits limits) {
+            this.limits = limits;
+            parentPathMap.put("ROOT", json);
+        }
+
+        /**
+         * Every distinct property key creates at least one node, so the key count bounds the node count from below.
+         */
+        void checkPropertyCount(int distinctKeys) {
+            if (distinctKeys > limits.maxNodes) {
+                throw new ConversionLimitExceededException(String.format("Property count %s exceeds node limit %s", distinctKeys, limits.maxNodes));
+            }
+        }
 
-        Map<String, JsonNode> parentPathMap = new LinkedHashMap<>();
-        parentPathMap.put("ROOT", json);
+        Property tokenize(String key, String value) {
+            countValueBytes(key, value);
+            return PropertyTokenizer.tokenize(key, value, limits);
+        }
 
-        Set<String> visitedPaths = new LinkedHashSet<>();
+        Property withValue(Property property, String value) {
+            countValueBytes(property.key, value);
+            return new Property(property.key, value, property.elements);
+        }
 
-        for (int i = 0; i < propertyList.size(); i++) {
-            Property property = propertyList.get(i);
+        private void countValueBytes(String key, String value) {
+            valueBytes += utf8Length(value);
+            if (valueBytes > limits.maxValueBytes) {
+                throw new ConversionLimitExceededException(String.format("Total value size exceeds %s bytes at property: %s", limits.maxValueBytes, PropertyTokenizer.abbreviate(key)));
+            }
+        }
 
+        void add(Property property) {
             for (int j = 0; j < property.elements.size(); j++) {
                 PropertyElement propertyElement = property.elements.get(j);
 
@@ -74,11 +433,21 @@ public final class PropertyMapToJsonConverter {
                         throw new IllegalStateException();
                 }
 
-                // skip already handled path
+                // skip already handled path, unless it was created as another node type, e.g. an array for x.0 and an
+                // object for x.a, which would silently drop one of the properties in an order dependent way
                 if (!visitedPaths.add(nextParentPathElements)) {
+                    JsonNode existingNode = parentPathMap.get(nextParentPathElements);
+                    if (existingNode.getNodeType() != jsonNode.getNodeType()) {
+                        throw new IllegalStateException(String.format("Conflicting node types %s and %s at path: %s",
+                                existingNode.getNodeType(), jsonNode.getNodeType(), PropertyTokenizer.abbreviate(nextParentPathElements.substring("ROOT.".length()))));
+                    }
                     continue;
                 }
 
+                if (++nodeCount > limits.maxNodes) {
+                    throw new ConversionLimitExceededException(String.format("Node count exceeds %s at property: %s", limits.maxNodes, PropertyTokenizer.abbreviate(property.key)));
+                }
+
                 // set next parentNode
                 JsonNode childNode = parentPathMap.computeIfAbsent(nextParentPathElements, k -> jsonNode);
 
@@ -93,44 +462,222 @@ public final class PropertyMapToJsonConverter {
                     ((ArrayNode) parentNode).add(childNode);
 
                 } else {
-                    throw new IllegalStateException("property-element-pos: " + i + " => " + parentNode);
+                    throw new IllegalStateException("property-element-pos: " + propertyCount + " => " + parentNode);
                 }
             }
+            propertyCount++;
         }
     }
 
-    private static String getPathElementsByProperty(Property property, int limit) {
-        List<String> parentPathElementList = property.elements.stream().limit(limit).map(PropertyElement::key).collect(Collectors.toList());
-        return "ROOT" + (parentPathElementList.isEmpty() ? "" : "." + String.join(".", parentPathElementList));
-    }
+    public static final class Builder {
+        static final String DEFAULT_SOURCE = "properties";
 
-    public Map<String, String> properties() {
-        return properties;
+        private final List<PropertySource> sources = new ArrayList<>();
+        private boolean canonical;
+        private boolean provenance;
+        private int maxDepth = Integer.MAX_VALUE;
+        private int maxArrayIndex = Integer.MAX_VALUE;
+        private int maxNodes = Integer.MAX_VALUE;
+        private long maxValueBytes = Long.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        public Builder properties(Map<String, String> properties) {
+            return source(DEFAULT_SOURCE, properties);
+        }
+
+        /**
+         * Adds a named property source. Sources are layered in the order they are added, and a property in a later
+         * source takes precedence over the same property in an earlier one.
+         */
+        public Builder source(String name, Map<String, String> properties) {
+            sources.add(new PropertySource(Objects.requireNonNull(name, "name"), Objects.requireNonNull(properties, "properties")));
+            return this;
+        }
+
+        /**
+         * Builds the json tree with object fields sorted by key and array elements sorted by index, regardless
+         * of the iteration order of the property map.
+         */
+        public Builder canonical(boolean canonical) {
+            this.canonical = canonical;
+            return this;
+        }
+
+        /**
+         * Records which source each property was taken from, see {@link PropertyMapToJsonConverter#provenance()}.
+         */
+        public Builder provenance(boolean provenance) {
+            this.provenance = provenance;
+            return this;
+        }
+
+        /**
+         * Limits the number of elements in a property key.
+         */
+        public Builder maxDepth(int maxDepth) {
+            if (maxDepth < 1) {
+                throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Limits the largest array index accepted in a property key.
+         */
+        public Builder maxArrayIndex(int maxArrayIndex) {
+            if (maxArrayIndex < 0) {
+                throw new IllegalArgumentException("maxArrayIndex must not be negative: " + maxArrayIndex);
+            }
+            this.maxArrayIndex = maxArrayIndex;
+            return this;
+        }
+
+        /**
+         * Limits the total number of nodes created in the json tree. For layered sources the number of distinct
+         * property keys is also limited while the sources are merged, before overridden paths are dropped.
+         */
+        public Builder maxNodes(int maxNodes) {
+            if (maxNodes < 1) {
+                throw new IllegalArgumentException("maxNodes must be positive: " + maxNodes);
+            }
+            this.maxNodes = maxNodes;
+            return this;
+        }
+
+        /**
+         * Limits the total UTF-8 encoded size of all property values, counted over all sources.
+         */
+        public Builder maxValueBytes(long maxValueBytes) {
+            if (maxValueBytes < 1) {
+                throw new IllegalArgumentException("maxValueBytes must be positive: " + maxValueBytes);
+            }
+            this.maxValueBytes = maxValueBytes;
+            return this;
+        }
+
+        /**
+         * @throws ConversionLimitExceededException if the properties exceed a configured limit
+         */
+        public PropertyMapToJsonConverter build() {
+            if (sources.isEmpty()) {
+                throw new IllegalStateException("No property sources");
+            }
+            return new PropertyMapToJsonConverter(this);
+        }
+
+        private Limits limits() {
+            return new Limits(maxDepth, maxArrayIndex, maxNodes, maxValueBytes);
+        }
     }
 
-    public ObjectNode json() {
-        return json;
+    static final class Limits {
+        static final Limits NONE = new Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        private final int maxDepth;
+        private final int maxArrayIndex;
+        private final int maxNodes;
+        private final long maxValueBytes;
+
+        Limits(int maxDepth, int maxArrayIndex, int maxNodes, long maxValueBytes) {
+            this.maxDepth = maxDepth;
+            this.maxArrayIndex = maxArrayIndex;
+            this.maxNodes = maxNodes;
+            this.maxValueBytes = maxValueBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Limits[" +
+                    "maxDepth=" + maxDepth + ", " +
+                    "maxArrayIndex=" + maxArrayIndex + ", " +
+                    "maxNodes=" + maxNodes + ", " +
+                    "maxValueBytes=" + maxValueBytes + ']';
+        }
     }
 
-    @Override
-    public boolean equals(Object obj) {
-        if (obj == this) return true;
-        if (obj == null || obj.getClass() != this.getClass()) return false;
-        PropertyMapToJsonConverter that = (PropertyMapToJsonConverter) obj;
-        return Objects.equals(this.properties, that.properties) &&
-                Objects.equals(this.json, that.json);
+    /**
+     * Thrown when the properties exceed a limit configured on the {@link Builder}.
+     */
+    public static final class ConversionLimitExceededException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        ConversionLimitExceededException(String message) {
+            super(message);
+        }
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(properties, json);
+    /**
+     * Read-only view of the property values in a property index, so layered sources are not copied into another map.
+     */
+    static final class PropertyIndexView extends AbstractMap<String, String> {
+        private final Map<String, Property> propertyIndex;
+
+        PropertyIndexView(Map<String, Property> propertyIndex) {
+            this.propertyIndex = propertyIndex;
+        }
+
+        @Override
+        public int size() {
+            return propertyIndex.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return propertyIndex.containsKey(key);
+        }
+
+        @Override
+        public String get(Object key) {
+            Property property = propertyIndex.get(key);
+            return property == null ? null : property.value;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    Iterator<Property> iterator = propertyIndex.values().iterator();
+                    return new Iterator<Entry<String, String>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            Property property = iterator.next();
+                            return new SimpleImmutableEntry<>(property.key, property.value);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return propertyIndex.size();
+                }
+            };
+        }
     }
 
-    @Override
-    public String toString() {
-        return "PropertyMapToJsonConverter[" +
-                "properties=" + properties + ", " +
-                "json=" + json + ']';
+    static class PropertySource {
+        private final String name;
+        private final Map<String, String> properties;
+
+        PropertySource(String name, Map<String, String> properties) {
+            this.name = name;
+            this.properties = properties;
+        }
+
+        @Override
+        public String toString() {
+            return "PropertySource[" +
+                    "name=" + name + ", " +
+                    "properties=" + properties + ']';
+        }
     }
 
     static class PropertyTokenizer {
@@ -162,8 +709,25 @@ public final class PropertyMapToJsonConverter {
         }
 
         static Property tokenize(String property, String value) {
+            return tokenize(property, value, Limits.NONE);
+        }
+
+        static Property tokenize(String property, String value, Limits limits) {
             List<PropertyElement> elementList = new ArrayList<>();
 
+            // reject deep paths before splitting, so the cost is bounded by the limit and not by the key length. split
+            // drops trailing empty elements, so trailing separators do not count
+            int end = property.length();
+            while (end > 0 && property.charAt(end - 1) == '.') {
+                end--;
+            }
+            int depth = 1;
+            for (int i = property.indexOf('.'); depth <= limits.maxDepth && i >= 0 && i < end; i = property.indexOf('.', i + 1)) {
+                depth++;
+            }
+            if (depth > limits.maxDepth) {
+                throw new ConversionLimitExceededException(String.format("Depth exceeds %s at property: %s", limits.maxDepth, abbreviate(property)));
+            }
 
             List<String> list = Arrays.asList(property.split("\\."));
             String previous = null;
@@ -175,9 +739,11 @@ public final class PropertyMapToJsonConverter {
                     elementList.add(PropertyElement.of(current, ElementType.LEAF_NODE));
 
                 } else if (isArrayNode(previous, current) && isArrayObject(current, next)) {
+                    checkArrayIndex(property, current, limits);
                     elementList.add(PropertyElement.of(current, ElementType.ARRAY_OBJECT));
 
                 } else if (isArrayNode(previous, current) && isArrayElement(current)) {
+                    checkArrayIndex(property, current, limits);
                     elementList.add(PropertyElement.of(current, ElementType.ARRAY_ELEMENT));
 
                 } else if (isArrayNode(current, next)) {
@@ -196,6 +762,21 @@ public final class PropertyMapToJsonConverter {
             return new Property(property, value, elementList);
         }
 
+        private static void checkArrayIndex(String property, String token, Limits limits) {
+            // tokens with more significant digits than a long are out of range for any int limit
+            int start = 0;
+            while (start < token.length() - 1 && token.charAt(start) == '0') {
+                start++;
+            }
+            if (token.length() - start > 18 || Long.parseLong(token.substring(start)) > limits.maxArrayIndex) {
+                throw new ConversionLimitExceededException(String.format("Array index exceeds %s at property: %s", limits.maxArrayIndex, abbreviate(property)));
+            }
+        }
+
+        private static String abbreviate(String property) {
+            return property.length() > 256 ? property.substring(0, 256) + "..." : property;
+        }
+
         private static boolean isLeafNode(String token, String nextToken) {
             return isObject(token) && nextToken == null;
         }
@@ -0,0 +1,301 @@
+package no.cantara.config.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Generates a Java class that constructs the json tree of a properties file directly, so static configuration can be
+ * converted at build time and startup skips tokenization and path resolution.
+ * <p>
+ * Usage: {@code PropertyMapToJsonSourceGenerator <properties-file> <output-directory> <fully-qualified-class-name>}
+ * <p>
+ * The generated class has a single {@code public static ObjectNode json()} method that returns a new tree on every
+ * call. The tree is built in canonical mode, so the generated source is reproducible.
+ */
+public final class PropertyMapToJsonSourceGenerator {
+    /**
+     * Cost is counted as one per statement and one per string literal chunk. Both bytecode size and constant pool
+     * entries grow by a small constant per cost unit, so these budgets keep every generated method well below the
+     * 64KB method size limit and every generated class well below the 65535 entry constant pool limit.
+     */
+    static final int COST_PER_METHOD = 1_000;
+    static final int COST_PER_CLASS = 8_000;
+
+    /**
+     * A string constant may not exceed 65535 bytes in modified UTF-8, where a char takes at most 3 bytes.
+     */
+    static final int LITERAL_CHUNK_LENGTH = 16_384;
+    static final int MAX_LITERAL_COST = (COST_PER_METHOD - 1) / 2;
+
+    private final List<StringBuilder> partClasses = new ArrayList<>();
+    private int partClassCost;
+    private int methodCount;
+
+    private PropertyMapToJsonSourceGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Usage: PropertyMapToJsonSourceGenerator <properties-file> <output-directory> <fully-qualified-class-name>");
+        }
+        Path propertiesFile = Paths.get(args[0]);
+        Path outputDirectory = Paths.get(args[1]);
+        String qualifiedClassName = args[2];
+
+        Path sourceFile = outputDirectory.resolve(qualifiedClassName.replace('.', '/') + ".java");
+        Files.createDirectories(sourceFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(sourceFile, StandardCharsets.UTF_8)) {
+            writer.write(generate(loadProperties(propertiesFile), qualifiedClassName, propertiesFile.getFileName().toString()));
+        }
+    }
+
+    static Map<String, String> loadProperties(Path propertiesFile) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(propertiesFile); Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, String> propertyMap = new LinkedHashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            propertyMap.put(key, properties.getProperty(key));
+        }
+        return propertyMap;
+    }
+
+    /**
+     * Generates the source of a class that constructs the json tree of the given properties.
+     *
+     * @param properties         properties to convert
+     * @param qualifiedClassName fully qualified name of the generated class
+     * @param origin             description of where the properties came from, used in the class comment
+     * @return Java source
+     */
+    public static String generate(Map<String, String> properties, String qualifiedClassName, String origin) {
+        ObjectNode json = PropertyMapToJsonConverter.builder()
+                .properties(properties)
+                .canonical(true)
+                .build()
+                .json();
+
+        int lastDot = qualifiedClassName.lastIndexOf('.');
+        String packageName = lastDot < 0 ? null : qualifiedClassName.substring(0, lastDot);
+        String className = qualifiedClassName.substring(lastDot + 1);
+
+        PropertyMapToJsonSourceGenerator generator = new PropertyMapToJsonSourceGenerator();
+        String rootMethod = generator.generateNode(json);
+
+        StringBuilder source = new StringBuilder();
+        if (packageName != null) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import com.fasterxml.jackson.databind.node.ArrayNode;\n");
+        source.append("import com.fasterxml.jackson.databind.node.JsonNodeFactory;\n");
+        source.append("import com.fasterxml.jackson.databind.node.ObjectNode;\n\n");
+        source.append("/**\n");
+        source.append(" * Generated by ").append(PropertyMapToJsonSourceGenerator.class.getSimpleName())
+                .append(" from ").append(escapeComment(origin)).append(". Do not edit.\n");
+        source.append(" */\n");
+        source.append("public final class ").append(className).append(" {\n\n");
+        source.append("    private ").append(className).append("() {\n");
+        source.append("    }\n\n");
+        source.append("    public static ObjectNode json() {\n");
+        source.append("        return ").append(rootMethod).append("();\n");
+        source.append("    }\n");
+        for (int i = 0; i < generator.partClasses.size(); i++) {
+            source.append("\n    static final class ").append(partClassName(i)).append(" {\n\n");
+            source.append("        private ").append(partClassName(i)).append("() {\n");
+            source.append("        }\n");
+            source.append(generator.partClasses.get(i));
+            source.append("    }\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * Emits one method per object or array node. Nodes whose children exceed {@link #COST_PER_METHOD} are filled by
+     * several part methods, and methods are spread over nested part classes of at most {@link #COST_PER_CLASS}.
+     *
+     * @return qualified name of the method constructing the node
+     */
+    private String generateNode(JsonNode node) {
+        String type = node.isArray() ? "ArrayNode" : "ObjectNode";
+        String methodName = (node.isArray() ? "array" : "object") + methodCount++;
+
+        List<Statement> statements = new ArrayList<>(node.size());
+        if (node.isArray()) {
+            for (JsonNode element : node) {
+                statements.add(new Statement("node.add(" + valueExpression(element) + ");", 1 + valueCost(element)));
+            }
+        } else {
+            for (Map.Entry<String, JsonNode> field : node.properties()) {
+                String function = field.getValue().isTextual() ? "put" : "set";
+                statements.add(new Statement("node." + function + "(" + literal(field.getKey()) + ", " + valueExpression(field.getValue()) + ");",
+                        1 + literalCost(field.getKey()) + valueCost(field.getValue())));
+            }
+        }
+
+        StringBuilder method = new StringBuilder();
+        method.append("\n        static ").append(type).append(" ").append(methodName).append("() {\n");
+        method.append("            ").append(type).append(" node = JsonNodeFactory.instance.").append(node.isArray() ? "arrayNode" : "objectNode").append("();\n");
+        int cost = 1;
+        List<List<Statement>> parts = split(statements);
+        if (parts.size() <= 1) {
+            for (Statement statement : statements) {
+                method.append("            ").append(statement.code).append("\n");
+                cost += statement.cost;
+            }
+        } else {
+            for (int part = 0; part < parts.size(); part++) {
+                String partMethodName = methodName + "Part" + part;
+                StringBuilder partMethod = new StringBuilder();
+                partMethod.append("\n        static void ").append(partMethodName).append("(").append(type).append(" node) {\n");
+                int partCost = 1;
+                for (Statement statement : parts.get(part)) {
+                    partMethod.append("            ").append(statement.code).append("\n");
+                    partCost += statement.cost;
+                }
+                partMethod.append("        }\n");
+                method.append("            ").append(emitMethod(partMethod, partCost)).append(".").append(partMethodName).append("(node);\n");
+                cost++;
+            }
+        }
+        method.append("            return node;\n");
+        method.append("        }\n");
+
+        // children are emitted while the statements above are generated, so parents are emitted after them
+        return emitMethod(method, cost) + "." + methodName;
+    }
+
+    private static List<List<Statement>> split(List<Statement> statements) {
+        List<List<Statement>> parts = new ArrayList<>();
+        List<Statement> part = new ArrayList<>();
+        int partCost = 0;
+        for (Statement statement : statements) {
+            if (partCost + statement.cost > COST_PER_METHOD) {
+                parts.add(part);
+                part = new ArrayList<>();
+                partCost = 0;
+            }
+            part.add(statement);
+            partCost += statement.cost;
+        }
+        if (!part.isEmpty()) {
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    /**
+     * @return name of the part class the method was added to
+     */
+    private String emitMethod(StringBuilder method, int cost) {
+        if (partClasses.isEmpty() || partClassCost + cost > COST_PER_CLASS) {
+            partClasses.add(new StringBuilder());
+            partClassCost = 0;
+        }
+        partClasses.get(partClasses.size() - 1).append(method);
+        partClassCost += cost;
+        return partClassName(partClasses.size() - 1);
+    }
+
+    private static String partClassName(int index) {
+        return "Part" + index;
+    }
+
+    private String valueExpression(JsonNode node) {
+        if (node.isTextual()) {
+            return literal(node.textValue());
+        }
+        if (node.isObject() || node.isArray()) {
+            return generateNode(node) + "()";
+        }
+        throw new IllegalStateException("Unsupported node: " + node);
+    }
+
+    private static int valueCost(JsonNode node) {
+        return node.isTextual() ? literalCost(node.textValue()) : 0;
+    }
+
+    /**
+     * Strings longer than {@link #LITERAL_CHUNK_LENGTH} are split into several constants joined at runtime. A key and
+     * a value of the maximum length still fit in one method.
+     */
+    static String literal(String value) {
+        if (value.length() <= LITERAL_CHUNK_LENGTH) {
+            return quote(value);
+        }
+        if (literalCost(value) > MAX_LITERAL_COST) {
+            throw new IllegalArgumentException(String.format("String of %s characters exceeds the %s characters that can be generated, starting with: %s",
+                    value.length(), MAX_LITERAL_COST * LITERAL_CHUNK_LENGTH, value.substring(0, 64)));
+        }
+        StringBuilder literal = new StringBuilder("new StringBuilder(").append(value.length()).append(")");
+        for (int start = 0; start < value.length(); start += LITERAL_CHUNK_LENGTH) {
+            literal.append(".append(").append(quote(value.substring(start, Math.min(start + LITERAL_CHUNK_LENGTH, value.length())))).append(")");
+        }
+        return literal.append(".toString()").toString();
+    }
+
+    private static int literalCost(String value) {
+        return Math.max(1, (value.length() + LITERAL_CHUNK_LENGTH - 1) / LITERAL_CHUNK_LENGTH);
+    }
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String escapeComment(String text) {
+        return text.replace("*/", "*&#47;").replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static final class Statement {
+        private final String code;
+        private final int cost;
+
+        Statement(String code, int cost) {
+            this.code = code;
+            this.cost = cost;
+        }
+    }
+}
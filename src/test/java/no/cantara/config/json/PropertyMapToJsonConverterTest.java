@@ -6,12 +6,17 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import no.cantara.config.ApplicationProperties;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
@@ -101,6 +106,254 @@ class PropertyMapToJsonConverterTest {
         Jackson.of(json).with("bar").with("foo").assertion().arrayCount(1);
     }
 
+    @Test
+    void canonicalOrderIsIndependentOfMapIterationOrder() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("b.c.10", "v3");
+        properties.put("b.c.2", "v2");
+        properties.put("a", "v1");
+        properties.put("b.a", "v1");
+        properties.put("b.c.0", "v1");
+
+        Map<String, String> reversed = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>(properties.keySet());
+        Collections.reverse(keys);
+        keys.forEach(key -> reversed.put(key, properties.get(key)));
+
+        PropertyMapToJsonConverter converter = PropertyMapToJsonConverter.builder().properties(properties).canonical(true).build();
+        PropertyMapToJsonConverter reversedConverter = PropertyMapToJsonConverter.builder().properties(reversed).canonical(true).build();
+
+        assertEquals("{\"a\":\"v1\",\"b\":{\"a\":\"v1\",\"c\":[\"v1\",\"v2\",\"v3\"]}}", converter.json().toString());
+        assertEquals(converter.json().toString(), reversedConverter.json().toString());
+        assertEquals(converter.contentHash(), reversedConverter.contentHash());
+        assertNotEquals(converter.contentHash(), new PropertyMapToJsonConverter(reversed).contentHash());
+
+        reversed.put("a", "v2");
+        assertNotEquals(converter.contentHash(), PropertyMapToJsonConverter.builder().properties(reversed).canonical(true).build().contentHash());
+    }
+
+    @Test
+    void contentHashCoversJsonTree() {
+        PropertyMapToJsonConverter converter = new PropertyMapToJsonConverter(Collections.singletonMap("a.0", "v"));
+        PropertyMapToJsonConverter otherConverter = new PropertyMapToJsonConverter(Collections.singletonMap("a.1", "v"));
+        assertEquals(converter.json(), otherConverter.json());
+        assertEquals(converter.contentHash(), otherConverter.contentHash());
+        assertNotEquals(converter.contentHash(), new PropertyMapToJsonConverter(Collections.singletonMap("a", "v")).contentHash());
+    }
+
+    @Test
+    void canonicalOrderOfMixedKeysIsIndependentOfMapIterationOrder() {
+        List<String> keys = new ArrayList<>();
+        for (String element : new String[]{"0", "1", "9", "10", "010", "1a", "a", "a1", "b"}) {
+            keys.add("x." + element);
+            keys.add("x." + element + ".y");
+        }
+        Random random = new Random(42);
+        String expected = null;
+        for (int i = 0; i < 100; i++) {
+            Collections.shuffle(keys, random);
+            List<String> sortedKeys = new ArrayList<>(keys);
+            sortedKeys.sort(CANONICAL_KEY_ORDER);
+            if (expected == null) {
+                expected = sortedKeys.toString();
+            }
+            assertEquals(expected, sortedKeys.toString());
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            for (int j = 0; j < keys.size(); j++) {
+                for (int k = 0; k < keys.size(); k++) {
+                    if (CANONICAL_KEY_ORDER.compare(keys.get(i), keys.get(j)) < 0 && CANONICAL_KEY_ORDER.compare(keys.get(j), keys.get(k)) < 0) {
+                        assertTrue(CANONICAL_KEY_ORDER.compare(keys.get(i), keys.get(k)) < 0);
+                    }
+                }
+            }
+        }
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("x.10", "b");
+        properties.put("x.9", "a");
+        properties.put("x.1a", "c");
+        Map<String, String> reordered = new LinkedHashMap<>();
+        reordered.put("x.9", "a");
+        reordered.put("x.1a", "c");
+        reordered.put("x.10", "b");
+        assertThrows(IllegalStateException.class, () -> PropertyMapToJsonConverter.builder().properties(properties).canonical(true).build());
+        assertThrows(IllegalStateException.class, () -> PropertyMapToJsonConverter.builder().properties(reordered).canonical(true).build());
+    }
+
+    @Test
+    void mixedArrayAndObjectChildrenAreRejected() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("x.a", "1");
+        properties.put("x.0", "2");
+        Map<String, String> reordered = new LinkedHashMap<>();
+        reordered.put("x.0", "2");
+        reordered.put("x.a", "1");
+
+        for (Map<String, String> map : Arrays.asList(properties, reordered)) {
+            IllegalStateException exception = assertThrows(IllegalStateException.class, () -> new PropertyMapToJsonConverter(map));
+            assertTrue(exception.getMessage().endsWith("at path: x"), exception.getMessage());
+            assertThrows(IllegalStateException.class, () -> PropertyMapToJsonConverter.builder().properties(map).canonical(true).build());
+        }
+
+        Map<String, String> arrayElementAndObject = new LinkedHashMap<>();
+        arrayElementAndObject.put("x.0.a", "1");
+        arrayElementAndObject.put("x.0", "2");
+        assertThrows(IllegalStateException.class, () -> new PropertyMapToJsonConverter(arrayElementAndObject));
+    }
+
+    @Test
+    void canonicalKeyOrder() {
+        assertTrue(CANONICAL_KEY_ORDER.compare("a.2", "a.10") < 0);
+        assertTrue(CANONICAL_KEY_ORDER.compare("a.b", "a.b.c") < 0);
+        assertTrue(CANONICAL_KEY_ORDER.compare("a.b.c", "a.ba") < 0);
+        assertTrue(CANONICAL_KEY_ORDER.compare("b", "a.z") > 0);
+        assertTrue(CANONICAL_KEY_ORDER.compare("x.10", "x.1a") < 0);
+        assertTrue(CANONICAL_KEY_ORDER.compare("x.9", "x.1a") < 0);
+        assertEquals(0, CANONICAL_KEY_ORDER.compare("a.1.b", "a.1.b"));
+    }
+
+    @Test
+    void layeredSourcesWithProvenance() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("a.b", "v1");
+        defaults.put("a.c", "v1");
+        defaults.put("list.0", "v1");
+        defaults.put("list.1", "v1");
+
+        Map<String, String> overrides = new LinkedHashMap<>();
+        overrides.put("list.0", "v2");
+        overrides.put("a.b", "v2");
+        overrides.put("a.d", "v2");
+
+        PropertyMapToJsonConverter converter = PropertyMapToJsonConverter.builder()
+                .source("defaults", defaults)
+                .source("overrides", overrides)
+                .provenance(true)
+                .build();
+        ObjectNode json = converter.json();
+
+        Jackson.of(json).with("a").with("b").assertion().equalTo("v2");
+        Jackson.of(json).with("a").with("c").assertion().equalTo("v1");
+        Jackson.of(json).with("a").with("d").assertion().equalTo("v2");
+        Jackson.of(json).with("list").assertion().arrayEquals("v2", "v1");
+
+        assertEquals(5, converter.properties().size());
+        assertEquals("v2", converter.properties().get("a.b"));
+        assertEquals("overrides", converter.provenance().get("a.b"));
+        assertEquals("defaults", converter.provenance().get("a.c"));
+        assertEquals("overrides", converter.provenance().get("list.0"));
+        assertEquals("defaults", converter.provenance().get("list.1"));
+
+        assertTrue(new PropertyMapToJsonConverter(defaults).provenance().isEmpty());
+    }
+
+    @Test
+    void layeredSourcesOverridePaths() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("a.b", "v1");
+        defaults.put("c.d.e", "v1");
+        defaults.put("c.d.f", "v1");
+        defaults.put("c.g", "v1");
+
+        Map<String, String> overrides = new LinkedHashMap<>();
+        overrides.put("a.b.c", "v2");
+        overrides.put("c.d", "v2");
+
+        PropertyMapToJsonConverter converter = PropertyMapToJsonConverter.builder()
+                .source("defaults", defaults)
+                .source("overrides", overrides)
+                .provenance(true)
+                .build();
+        ObjectNode json = converter.json();
+
+        // scalar overridden by subtree
+        Jackson.of(json).with("a").with("b").with("c").assertion().equalTo("v2");
+        // subtree overridden by scalar
+        Jackson.of(json).with("c").with("d").assertion().equalTo("v2");
+        Jackson.of(json).with("c").with("g").assertion().equalTo("v1");
+
+        assertEquals(3, converter.properties().size());
+        assertFalse(converter.properties().containsKey("a.b"));
+        assertFalse(converter.properties().containsKey("c.d.e"));
+        assertEquals("overrides", converter.provenance().get("a.b.c"));
+        assertEquals("overrides", converter.provenance().get("c.d"));
+        assertEquals("defaults", converter.provenance().get("c.g"));
+        assertEquals(3, converter.provenance().size());
+    }
+
+    @Test
+    void layeredSourcesOverridePathsAtScale() {
+        int count = 40_000;
+        Map<String, String> defaults = new LinkedHashMap<>();
+        Map<String, String> overrides = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            defaults.put("k" + i + ".x", "v1");
+            defaults.put("k" + i + ".y", "v1");
+            defaults.put("s" + i, "v1");
+            overrides.put("k" + i, "v2");
+            overrides.put("s" + i + ".z", "v2");
+        }
+
+        // removing overridden subtrees must not scan the whole index per key
+        PropertyMapToJsonConverter converter = assertTimeout(Duration.ofSeconds(15), () -> PropertyMapToJsonConverter.builder()
+                .source("defaults", defaults)
+                .source("overrides", overrides)
+                .provenance(true)
+                .build());
+
+        assertEquals(2 * count, converter.properties().size());
+        assertEquals(2 * count, converter.provenance().size());
+        Jackson.of(converter.json()).with("k" + (count - 1)).assertion().equalTo("v2");
+        Jackson.of(converter.json()).with("s" + (count - 1)).with("z").assertion().equalTo("v2");
+    }
+
+    @Test
+    void conversionLimits() {
+        StringBuilder deepKey = new StringBuilder("a");
+        IntStream.range(0, 10_000).forEach(i -> deepKey.append(".a"));
+        ConversionLimitExceededException depthException = assertThrows(ConversionLimitExceededException.class, () ->
+                PropertyMapToJsonConverter.builder().properties(Collections.singletonMap(deepKey.toString(), "v1")).maxDepth(16).build());
+        assertTrue(depthException.getMessage().startsWith("Depth exceeds 16"));
+        ConversionLimitExceededException layeredDepthException = assertThrows(ConversionLimitExceededException.class, () ->
+                PropertyMapToJsonConverter.builder()
+                        .source("defaults", Collections.singletonMap("a", "v1"))
+                        .source("tenant", Collections.singletonMap(deepKey.toString(), "v1"))
+                        .maxDepth(16)
+                        .build());
+        assertTrue(layeredDepthException.getMessage().startsWith("Depth exceeds 16"));
+        // split drops trailing empty elements, so trailing separators do not add depth
+        assertDoesNotThrow(() -> PropertyMapToJsonConverter.builder().properties(Collections.singletonMap("a.b.", "v1")).maxDepth(2).build());
+
+        assertThrows(ConversionLimitExceededException.class, () ->
+                PropertyMapToJsonConverter.builder().properties(Collections.singletonMap("a.999999999", "v1")).maxArrayIndex(1000).build());
+        assertThrows(ConversionLimitExceededException.class, () ->
+                PropertyMapToJsonConverter.builder().properties(Collections.singletonMap("a.99999999999999999999", "v1")).maxArrayIndex(1000).build());
+        assertDoesNotThrow(() ->
+                PropertyMapToJsonConverter.builder().properties(Collections.singletonMap("a.1000", "v1")).maxArrayIndex(1000).build());
+        assertDoesNotThrow(() ->
+                PropertyMapToJsonConverter.builder().properties(Collections.singletonMap("a.0000000000000000000001", "v1")).maxArrayIndex(1000).build());
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("a.b", "v1");
+        properties.put("a.c", "v1");
+        properties.put("d", "v1");
+        assertDoesNotThrow(() -> PropertyMapToJsonConverter.builder().properties(properties).maxNodes(4).maxValueBytes(6).build());
+        assertThrows(ConversionLimitExceededException.class, () -> PropertyMapToJsonConverter.builder().properties(properties).maxNodes(3).build());
+        assertThrows(ConversionLimitExceededException.class, () -> PropertyMapToJsonConverter.builder().properties(properties).maxValueBytes(5).build());
+        assertThrows(ConversionLimitExceededException.class, () -> PropertyMapToJsonConverter.builder().properties(properties).maxNodes(2).canonical(true).build());
+        assertThrows(ConversionLimitExceededException.class, () -> PropertyMapToJsonConverter.builder().source("defaults", properties).source("overrides", properties).maxValueBytes(8).build());
+
+        assertDoesNotThrow(() -> PropertyMapToJsonConverter.builder().properties(Collections.singletonMap("a", "v1")).maxDepth(1).build());
+        assertThrows(ConversionLimitExceededException.class, () -> PropertyMapToJsonConverter.builder().properties(Collections.singletonMap("a.b", "v1")).maxDepth(1).build());
+
+        assertThrows(IllegalArgumentException.class, () -> PropertyMapToJsonConverter.builder().maxDepth(0));
+        assertThrows(IllegalArgumentException.class, () -> PropertyMapToJsonConverter.builder().maxArrayIndex(-1));
+        assertThrows(IllegalArgumentException.class, () -> PropertyMapToJsonConverter.builder().maxNodes(0));
+        assertThrows(IllegalArgumentException.class, () -> PropertyMapToJsonConverter.builder().maxValueBytes(-1));
+        assertDoesNotThrow(() -> PropertyMapToJsonConverter.builder().maxArrayIndex(0));
+    }
+
     interface JacksonAssert {
         JsonNode json();
 
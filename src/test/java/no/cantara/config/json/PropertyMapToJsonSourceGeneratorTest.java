@@ -0,0 +1,130 @@
+package no.cantara.config.json;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PropertyMapToJsonSourceGeneratorTest {
+
+    @Test
+    void generatedClassConstructsEquivalentJson(@TempDir Path tempDir) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "No system java compiler");
+
+        Path propertiesFile = Paths.get(getClass().getResource("/application-test.properties").toURI());
+        Path outputDirectory = tempDir.resolve("generated-sources");
+        PropertyMapToJsonSourceGenerator.main(new String[]{propertiesFile.toString(), outputDirectory.toString(), "no.cantara.config.json.generated.TestConfig"});
+
+        Path sourceFile = outputDirectory.resolve("no/cantara/config/json/generated/TestConfig.java");
+        assertTrue(Files.exists(sourceFile));
+
+        Map<String, String> properties = PropertyMapToJsonSourceGenerator.loadProperties(propertiesFile);
+        ObjectNode json = PropertyMapToJsonConverter.builder().properties(properties).canonical(true).build().json();
+        assertEquals(json.toString(), compileAndInvoke(compiler, tempDir, sourceFile, "no.cantara.config.json.generated.TestConfig").toString());
+    }
+
+    @Test
+    void wideObjectIsSplitIntoPartMethods(@TempDir Path tempDir) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "No system java compiler");
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            properties.put("key" + i, "value" + i);
+            properties.put("list." + i, "element" + i);
+        }
+        String source = PropertyMapToJsonSourceGenerator.generate(properties, "WideConfig", "test");
+        assertTrue(source.contains("object0Part9(node);"));
+
+        Path sourceFile = Files.createDirectories(tempDir.resolve("generated-sources")).resolve("WideConfig.java");
+        Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+
+        ObjectNode json = PropertyMapToJsonConverter.builder().properties(properties).canonical(true).build().json();
+        assertEquals(json, compileAndInvoke(compiler, tempDir, sourceFile, "WideConfig"));
+    }
+
+    @Test
+    void longStringsAreSplitIntoChunks(@TempDir Path tempDir) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "No system java compiler");
+
+        // a char above U+07FF takes 3 bytes in the constant pool, so 70k chars are well above the 65535 byte limit
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 70_000; i++) {
+            value.append(i % 3 == 0 ? '\u20ac' : (char) ('a' + i % 26));
+        }
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("long", value.toString());
+        properties.put("key" + value.substring(0, 20_000), "v1");
+        String source = PropertyMapToJsonSourceGenerator.generate(properties, "LongConfig", "test");
+        assertTrue(source.contains("new StringBuilder(70000)"));
+
+        Path sourceFile = Files.createDirectories(tempDir.resolve("generated-sources")).resolve("LongConfig.java");
+        Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+
+        ObjectNode json = PropertyMapToJsonConverter.builder().properties(properties).canonical(true).build().json();
+        assertEquals(json, compileAndInvoke(compiler, tempDir, sourceFile, "LongConfig"));
+
+        StringBuilder tooLong = new StringBuilder();
+        while (tooLong.length() <= PropertyMapToJsonSourceGenerator.MAX_LITERAL_COST * PropertyMapToJsonSourceGenerator.LITERAL_CHUNK_LENGTH) {
+            tooLong.append(value);
+        }
+        assertThrows(IllegalArgumentException.class, () ->
+                PropertyMapToJsonSourceGenerator.generate(Collections.singletonMap("a", tooLong.toString()), "TooLongConfig", "test"));
+    }
+
+    @Test
+    void manyConstantsAreSpreadOverPartClasses(@TempDir Path tempDir) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "No system java compiler");
+
+        // 80k distinct strings do not fit the constant pool of a single class
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (int i = 0; i < 40_000; i++) {
+            properties.put("key" + i, "value" + i);
+        }
+        String source = PropertyMapToJsonSourceGenerator.generate(properties, "ManyConfig", "test");
+        assertTrue(source.contains("static final class Part1 {"));
+
+        Path sourceFile = Files.createDirectories(tempDir.resolve("generated-sources")).resolve("ManyConfig.java");
+        Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+
+        ObjectNode json = PropertyMapToJsonConverter.builder().properties(properties).canonical(true).build().json();
+        assertEquals(json, compileAndInvoke(compiler, tempDir, sourceFile, "ManyConfig"));
+    }
+
+    private ObjectNode compileAndInvoke(JavaCompiler compiler, Path tempDir, Path sourceFile, String className) throws Exception {
+        Path classesDirectory = Files.createDirectories(tempDir.resolve("classes"));
+        int result = compiler.run(null, null, null,
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", classesDirectory.toString(),
+                sourceFile.toString());
+        assertEquals(0, result);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classesDirectory.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> generatedClass = classLoader.loadClass(className);
+            return (ObjectNode) generatedClass.getMethod("json").invoke(null);
+        }
+    }
+
+    @Test
+    void quoteEscapesJavaStringLiterals() {
+        assertEquals("\"a\\\"b\\\\c\\nd\\u00e6\"", PropertyMapToJsonSourceGenerator.quote("a\"b\\c\ndæ"));
+        assertEquals("\"v1\"", PropertyMapToJsonSourceGenerator.quote("v1"));
+    }
+}